@@ -3,10 +3,9 @@ package com.futurmaster.demandplanning.componenttest;
 import com.c4_soft.springaddons.security.oauth2.test.annotations.OpenIdClaims;
 import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.futurmaster.demandplanning.model.DPConfig;
-import com.futurmaster.demandplanning.model.Node;
-import com.futurmaster.demandplanning.model.SearchNode;
+import com.futurmaster.demandplanning.model.*;
 import com.futurmaster.demandplanning.service.CacheService;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import org.apache.commons.lang3.tuple.Pair;
@@ -23,19 +22,27 @@ import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static com.futurmaster.demandplanning.utils.MapperUtils.OBJECT_MAPPER;
 import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static org.awaitility.Awaitility.await;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 @AutoConfigureWireMock(port = 0)
@@ -47,6 +54,9 @@ import static org.springframework.boot.test.context.SpringBootTest.WebEnvironmen
 public abstract class AbstractComponentTest {
 
     protected static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy");
+    protected static final String ALT_ID = "ALT_ID";
+    protected static final String CONFIG_ID = "CONFIG_ID";
+    private static final Set<String> TERMINAL_JOB_STATUSES = Set.of("DONE", "FAILED");
 
     @Autowired
     protected MockMvc mockMvc;
@@ -81,6 +91,52 @@ public abstract class AbstractComponentTest {
         );
     }
 
+    /**
+     * Insert the default alternative, a PRODUCT config and its nodes.
+     *
+     * @param nodes, the nodes of the config, usually created with {@link #newNode(String, String, String)}
+     * @param chronologies, the chronologies of the config level
+     * @return the saved config
+     */
+    protected DPConfig insertConfig(List<Node> nodes, ChronoType... chronologies) {
+        Alternative alternative = Alternative.builder()
+                .id(ALT_ID)
+                .name("ALTERNATIVE_1")
+                .isDefault(true)
+                .version(0L)
+                .originHistory("HISTORY")
+                .build();
+
+        DPConfig dpConfig = DPConfig.builder()
+                .id(CONFIG_ID)
+                .level(ConfigLevel.builder()
+                        .name("CONFIG_NAME")
+                        .priority(1)
+                        .aggregate("PRODUCT")
+                        .chronologies(List.of(chronologies))
+                        .build())
+                .build();
+
+        mongoTemplate.insert(alternative);
+        mongoTemplate.save(dpConfig);
+        insertNodes(nodes, dpConfig);
+        return dpConfig;
+    }
+
+    /**
+     * @return a DAILY node of the default alternative and config
+     */
+    protected Node newNode(String id, String nodeId, String code) {
+        return Node.builder()
+                .id(id)
+                .nodeId(nodeId)
+                .alternativeId(ALT_ID)
+                .code(code)
+                .chronology(ChronoType.DAILY)
+                .configId(CONFIG_ID)
+                .build();
+    }
+
     protected void insertNodes(List<Node> nodes, DPConfig dpConfig) {
         List<SearchNode> searchNodes = nodes.stream()
                 .map(node -> Pair.of(node.getNodeId(), node.getCode()))
@@ -95,4 +151,42 @@ public abstract class AbstractComponentTest {
         mongoTemplate.insertAll(searchNodes);
         mongoTemplate.insertAll(nodes);
     }
+
+    /**
+     * Create a pool whose tasks run with the security context of the test, so that concurrent requests are
+     * authenticated like the ones sent from the test thread.
+     *
+     * @param nbThreads, the size of the pool
+     * @return the pool, to shut down by the caller
+     */
+    protected ExecutorService newSecuredExecutor(int nbThreads) {
+        return new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(nbThreads),
+                SecurityContextHolder.getContext());
+    }
+
+    /**
+     * Poll a job until it is DONE or FAILED, on the test thread so that the MockMvc security context is used.
+     *
+     * @param jobId, the id returned when the job was started
+     * @return the last job status read
+     */
+    protected JsonNode awaitJob(String jobId) {
+        return awaitJob(jobId, TERMINAL_JOB_STATUSES);
+    }
+
+    /**
+     * Poll a job until it reaches one of {@code statuses}, e.g. DONE only after resuming a FAILED job.
+     *
+     * @param jobId, the id returned when the job was started
+     * @param statuses, the statuses ending the wait
+     * @return the last job status read
+     */
+    protected JsonNode awaitJob(String jobId, Set<String> statuses) {
+        return await().atMost(Duration.ofSeconds(30))
+                .pollInterval(Duration.ofMillis(100))
+                .pollInSameThread()
+                .until(() -> objectMapper.readTree(mockMvc.perform(get("/jobs/{id}", jobId))
+                                .andReturn().getResponse().getContentAsString()),
+                        job -> statuses.contains(job.path("status").asText()));
+    }
 }
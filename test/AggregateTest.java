@@ -0,0 +1,113 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.futurmaster.legacyclient.aggregate.AggregateResponse;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.*;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Aggregate")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = "mongo.bulk-write.batch-size=1000")
+class AggregateTest extends AbstractComponentTest {
+
+    private DPConfig dpConfig;
+
+    private void prepareConfig() {
+        dpConfig = insertConfig(List.of(newNode("ID", "NODE_ID", "NODE_CODE")), ChronoType.DAILY);
+    }
+
+    private ResultActions aggregate() throws Exception {
+        return mockMvc.perform(post("/nodes/aggregate")
+                .content(objectMapper.writeValueAsString(Map.of("configId", dpConfig.getId(), "ruleKey", "AGG_1")))
+                .contentType(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * @return the number of documents stored for each nodeId
+     */
+    private Map<String, Integer> documentCountsByNodeId(Class<?> type) {
+        return mongoTemplate.aggregate(newAggregation(group("nodeId").count().as("count")), type, Document.class)
+                .getMappedResults().stream()
+                .collect(Collectors.toMap(document -> document.getString("_id"), document -> document.getInteger("count")));
+    }
+
+    @Test
+    @DisplayName("Only the nodes missing from the database are created")
+    void createMissingNodes() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubAggregate();
+        prepareConfig();
+
+        // When
+        ResultActions result = aggregate();
+
+        // Then
+        result.andExpect(status().isOk());
+        Map<String, Integer> expectedCounts = Map.of("NODE_ID", 1, "NODE_ID1", 1, "NODE_ID2", 1);
+        assertThat(documentCountsByNodeId(Node.class)).isEqualTo(expectedCounts);
+        assertThat(documentCountsByNodeId(SearchNode.class)).isEqualTo(expectedCounts);
+        assertThat(mongoTemplate.findById("ID", Node.class)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Duplicated aggregates of a large aggregation are created once")
+    void createLargeAggregation() throws Exception {
+        // Given
+        int nbAggregates = 20_000;
+        List<AggregateResponse> aggregateResponses = new ArrayList<>();
+        for (int i = 0; i < nbAggregates; i++) {
+            AggregateResponse aggregateResponse = new AggregateResponse();
+            aggregateResponse.setId("AGG_NODE_ID" + i);
+            aggregateResponse.setKey("AGG_CODE" + i);
+            aggregateResponse.setDescription("DESCRIPTION " + i);
+            aggregateResponses.add(aggregateResponse);
+            // Every tenth aggregate is returned twice by legacy
+            if (i % 10 == 0) {
+                aggregateResponses.add(aggregateResponse);
+            }
+        }
+        stubLegacyConfig();
+        stubNode();
+        stubAggregate(aggregateResponses);
+        prepareConfig();
+
+        // When
+        ResultActions result = aggregate();
+
+        // Then
+        result.andExpect(status().isOk());
+        assertThat(mongoTemplate.count(new Query(), Node.class)).isEqualTo(nbAggregates + 1L);
+        assertThat(mongoTemplate.count(new Query(), SearchNode.class)).isEqualTo(nbAggregates + 1L);
+        for (Class<?> type : List.of(Node.class, SearchNode.class)) {
+            Map<String, Integer> counts = documentCountsByNodeId(type);
+            assertThat(counts).as("%s documents per nodeId", type.getSimpleName()).hasSize(nbAggregates + 1);
+            assertThat(counts.entrySet())
+                    .as("%s documents per nodeId", type.getSimpleName())
+                    .allSatisfy(count -> assertThat(count.getValue()).as(count.getKey()).isEqualTo(1));
+        }
+        verify(RequestPatternBuilder.like(SAVE_NODES_STUB_REQUEST));
+    }
+}
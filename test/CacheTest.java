@@ -0,0 +1,252 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.futurmaster.legacyclient.node.Rule;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubLegacyConfig;
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubNode;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Cache")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = {
+        "cache.specs.dpConfig.maximum-size=10",
+        "cache.specs.dpConfig.ttl=1s",
+        "cache.specs.selectionRules.maximum-weight=5",
+        "cache.specs.legacyConfig.refresh-after-write=1s"
+})
+class CacheTest extends AbstractComponentTest {
+
+    private static final String LEGACY_CONFIG_CACHE = "legacyConfig";
+    private static final String DP_CONFIG_CACHE = "dpConfig";
+    private static final String SELECTION_RULES_CACHE = "selectionRules";
+    private static final String LEGACY_CONFIG_URL = "/fmlegacywrapper/api/fmfacade/Common_GetFMConfig";
+    private static final int RELOAD_DELAY_MILLISECONDS = 3_000;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private void prepareConfig() {
+        insertConfig(List.of(newNode("ID", "NODE_ID", "NODE_CODE")), ChronoType.DAILY);
+    }
+
+    private double cacheGets(String cacheName, String result) {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", cacheName, "result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        assertThat(cache).isInstanceOf(CaffeineCache.class);
+        return ((CaffeineCache) cache).getNativeCache();
+    }
+
+    @Test
+    @DisplayName("Named caches are bounded and report their statistics")
+    void namedCachesReportStatistics() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+        double hitsBefore = cacheGets(LEGACY_CONFIG_CACHE, "hit");
+
+        // When
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+
+        // Then
+        verify(1, getRequestedFor(urlEqualTo(LEGACY_CONFIG_URL)));
+        assertThat(cacheGets(LEGACY_CONFIG_CACHE, "hit")).isGreaterThan(hitsBefore);
+        assertThat(meterRegistry.find("cache.evictions").tag("cache", LEGACY_CONFIG_CACHE).functionCounter()).isNotNull();
+        assertThat(meterRegistry.find("cache.size").tag("cache", LEGACY_CONFIG_CACHE).gauge()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Evicting one entry does not flush the other caches")
+    void evictSingleEntry() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+
+        // When
+        Cache dpConfigCache = cacheManager.getCache(DP_CONFIG_CACHE);
+        assertThat(dpConfigCache).isNotNull();
+        dpConfigCache.evict(CONFIG_ID);
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+
+        // Then
+        verify(1, getRequestedFor(urlEqualTo(LEGACY_CONFIG_URL)));
+        assertThat(dpConfigCache.get(CONFIG_ID)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Concurrent reads share a single legacy config load")
+    void concurrentReadsLoadLegacyConfigOnce() throws Exception {
+        // Given
+        stubLegacyConfig(null, null, null, null, 500);
+        stubNode();
+        prepareConfig();
+        int nbRequests = 8;
+        ExecutorService executor = newSecuredExecutor(nbRequests);
+
+        // When
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (int i = 0; i < nbRequests; i++) {
+                statuses.add(executor.submit((Callable<Integer>) () -> {
+                    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+                    return mockMvc.perform(get("/nodes/NODE_ID")).andReturn().getResponse().getStatus();
+                }));
+            }
+            for (Future<Integer> status : statuses) {
+                assertThat(status.get()).isEqualTo(200);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        verify(1, getRequestedFor(urlEqualTo(LEGACY_CONFIG_URL)));
+    }
+
+    /**
+     * @return the only legacy config held in the cache
+     */
+    private Object cachedLegacyConfig() {
+        assertThat(nativeCache(LEGACY_CONFIG_CACHE).asMap()).hasSize(1);
+        return nativeCache(LEGACY_CONFIG_CACHE).asMap().values().iterator().next();
+    }
+
+    @Test
+    @DisplayName("A stale legacy config is served while a single reload runs in the background")
+    void staleLegacyConfigIsServedWhileRefreshing() throws Exception {
+        // Given
+        stubLegacyConfig(LocalDate.of(2021, 1, 1), LocalDate.of(2022, 1, 1), null, null);
+        stubNode();
+        prepareConfig();
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+        Object loadedConfig = cachedLegacyConfig();
+        assertThat(nativeCache(LEGACY_CONFIG_CACHE).policy().refreshAfterWrite())
+                .map(Policy.FixedRefresh::getRefreshesAfter)
+                .contains(Duration.ofSeconds(1));
+
+        // Legacy now answers another config, slowly
+        stubLegacyConfig(LocalDate.of(2020, 1, 1), LocalDate.of(2022, 1, 1), null, null, RELOAD_DELAY_MILLISECONDS);
+        Thread.sleep(1_100);
+
+        // When
+        long start = System.nanoTime();
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+        Duration staleReads = Duration.ofNanos(System.nanoTime() - start);
+
+        // Then the old value is served without waiting for legacy, and only one reload is started
+        assertThat(staleReads).isLessThan(Duration.ofMillis(RELOAD_DELAY_MILLISECONDS));
+        assertThat(cachedLegacyConfig()).isSameAs(loadedConfig);
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> cachedLegacyConfig() != loadedConfig);
+        verify(2, getRequestedFor(urlEqualTo(LEGACY_CONFIG_URL)));
+
+        // And a later read uses the reloaded config without another call
+        Object reloadedConfig = cachedLegacyConfig();
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+        assertThat(cachedLegacyConfig()).isSameAs(reloadedConfig);
+        verify(2, getRequestedFor(urlEqualTo(LEGACY_CONFIG_URL)));
+    }
+
+    @Test
+    @DisplayName("A cache never holds more entries than its maximum size")
+    void cacheIsBoundedByMaximumSize() {
+        // Given
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> dpConfigCache = nativeCache(DP_CONFIG_CACHE);
+        double evictionsBefore = meterRegistry.get("cache.evictions").tag("cache", DP_CONFIG_CACHE).functionCounter().count();
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            dpConfigCache.put("CONFIG_ID" + i, DPConfig.builder().id("CONFIG_ID" + i).build());
+        }
+        dpConfigCache.cleanUp();
+
+        // Then
+        assertThat(dpConfigCache.policy().eviction())
+                .map(Policy.Eviction::getMaximum)
+                .contains(10L);
+        assertThat(dpConfigCache.estimatedSize()).isLessThanOrEqualTo(10);
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", DP_CONFIG_CACHE).functionCounter().count())
+                .isGreaterThanOrEqualTo(evictionsBefore + 40);
+    }
+
+    @Test
+    @DisplayName("An entry expires once its TTL is over")
+    void cacheEntryExpiresAfterTtl() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> dpConfigCache = nativeCache(DP_CONFIG_CACHE);
+
+        // When
+        mockMvc.perform(get("/nodes/NODE_ID")).andExpect(status().isOk());
+
+        // Then
+        assertThat(dpConfigCache.policy().expireAfterWrite())
+                .map(Policy.FixedExpiration::getExpiresAfter)
+                .contains(Duration.ofSeconds(1));
+        assertThat(dpConfigCache.getIfPresent(CONFIG_ID)).isNotNull();
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> dpConfigCache.getIfPresent(CONFIG_ID) == null);
+    }
+
+    @Test
+    @DisplayName("A weighted cache stays under its maximum weight")
+    void cacheIsBoundedByMaximumWeight() {
+        // Given
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> selectionRulesCache = nativeCache(SELECTION_RULES_CACHE);
+        List<Rule> threeRules = List.of(new Rule("SEL_1", "Selection 1"), new Rule("SEL_2", "Selection 2"), new Rule("SEL_3", "Selection 3"));
+
+        // When
+        selectionRulesCache.put("CONFIG_ID1", threeRules);
+        selectionRulesCache.put("CONFIG_ID2", threeRules);
+        selectionRulesCache.cleanUp();
+
+        // Then
+        Policy.Eviction<Object, Object> eviction = selectionRulesCache.policy().eviction().orElseThrow();
+        assertThat(eviction.isWeighted()).isTrue();
+        assertThat(eviction.getMaximum()).isEqualTo(5L);
+        assertThat(eviction.weightedSize().orElseThrow()).isLessThanOrEqualTo(5L);
+        assertThat(selectionRulesCache.estimatedSize()).isEqualTo(1);
+    }
+}
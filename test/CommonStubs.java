@@ -4,14 +4,19 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.futurmaster.generated.FMProtoFMConfigOuterClass.FMProtoFMConfig;
 import com.futurmaster.legacyclient.aggregate.AggregateResponse;
 import com.futurmaster.legacyclient.node.NodeResponse;
+import com.futurmaster.legacyclient.node.Rule;
 import com.futurmaster.legacyclient.node.TimeSeriesType;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.matching.RequestPattern;
+import com.github.tomakehurst.wiremock.matching.StringValuePattern;
+import org.apache.http.HttpHeaders;
 
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -23,8 +28,13 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 public class CommonStubs {
 
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy");
+    public static final String MODELS_ETAG = "\"models-v1\"";
+    public static final String INDICATORS_ETAG = "\"indicators-v1\"";
     public static RequestPattern SAVE_NODES_STUB_REQUEST;
+    public static RequestPattern PATCH_NODES_STUB_REQUEST;
     public static RequestPattern LOAD_NODE_STUB_REQUEST;
+    public static RequestPattern LOAD_NODES_STUB_REQUEST;
+    public static final String LOAD_NODES_URL = "/fmlegacywrapper/api/fmfacade/loadNodes";
 
     private CommonStubs() {
     }
@@ -35,26 +45,52 @@ public class CommonStubs {
 
     public static void stubLegacyConfig(LocalDate startHistory, LocalDate endHistory, LocalDate startForecast, LocalDate endForecast)
             throws ParseException, JsonProcessingException {
+        stubLegacyConfig(startHistory, endHistory, startForecast, endForecast, 0);
+    }
+
+    /**
+     * Stub the legacy config, Common_GetFMConfig answering after {@code fixedDelayMilliseconds}.
+     */
+    public static void stubLegacyConfig(LocalDate startHistory, LocalDate endHistory, LocalDate startForecast, LocalDate endForecast,
+                                        int fixedDelayMilliseconds) throws ParseException, JsonProcessingException {
         FMProtoFMConfig legacyConfig = LegacyConfig.getFmConfig(format(startHistory), format(endHistory), format(startForecast), format(endForecast));
 
         stubFor(get("/fmlegacywrapper/api/fmfacade/Common_GetFMConfig")
-                .willReturn(aResponse().withBody(legacyConfig.toByteArray())));
+                .willReturn(aResponse().withBody(legacyConfig.toByteArray()).withFixedDelay(fixedDelayMilliseconds)));
         stubFor(get("/fmlegacywrapper/api/fmfacade/getAggregateRules")
                 .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(LegacyConfig.getAggregateRules()))));
         stubFor(get("/fmlegacywrapper/api/fmfacade/getSelections")
                 .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(LegacyConfig.getSelectionRules()))));
     }
 
+    public static void stubLegacyRules(List<Rule> aggregateRules, List<Rule> selectionRules) throws JsonProcessingException {
+        stubFor(get("/fmlegacywrapper/api/fmfacade/getAggregateRules")
+                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(aggregateRules))));
+        stubFor(get("/fmlegacywrapper/api/fmfacade/getSelections")
+                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(selectionRules))));
+    }
+
     private static String format(LocalDate localDate) {
         return Optional.ofNullable(localDate).map(LegacyConfig.DATE_FORMATTER::format).orElse(null);
     }
 
     public static void stubDemandSensingConfig() throws IOException {
-        stubFor(get("/demandsensing/models/?chronologies=DAILY%2CWEEKLY%2CMONTHLY")
-                .willReturn(okJson(DemandSensingConfig.getModels())));
-
-        stubFor(get("/demandsensing/indicators/")
-                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(DemandSensingConfig.getKpis()))));
+        String modelsUrl = "/demandsensing/models/?chronologies=DAILY%2CWEEKLY%2CMONTHLY";
+        String indicatorsUrl = "/demandsensing/indicators/";
+
+        stubFor(get(modelsUrl)
+                .willReturn(okJson(DemandSensingConfig.getModels())
+                        .withHeader(HttpHeaders.ETAG, MODELS_ETAG)));
+        stubFor(get(modelsUrl)
+                .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo(MODELS_ETAG))
+                .willReturn(aResponse().withStatus(304)));
+
+        stubFor(get(indicatorsUrl)
+                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(DemandSensingConfig.getKpis()))
+                        .withHeader(HttpHeaders.ETAG, INDICATORS_ETAG)));
+        stubFor(get(indicatorsUrl)
+                .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo(INDICATORS_ETAG))
+                .willReturn(aResponse().withStatus(304)));
     }
 
     public static void stubNode() throws Exception {
@@ -62,6 +98,13 @@ public class CommonStubs {
     }
 
     public static void stubNode(Date startDate, Date endDate, List<NodeResponse.TimeSeries> timeSeries) throws Exception {
+        stubNode(startDate, endDate, timeSeries, 0);
+    }
+
+    /**
+     * Stub the legacy node calls, loadNode answering after {@code fixedDelayMilliseconds}.
+     */
+    public static void stubNode(Date startDate, Date endDate, List<NodeResponse.TimeSeries> timeSeries, int fixedDelayMilliseconds) throws Exception {
         NodeResponse nodeResponse = new NodeResponse();
         nodeResponse.setId("NODE_ID");
         nodeResponse.setCode("NODE_CODE");
@@ -77,7 +120,7 @@ public class CommonStubs {
         nodeResponse.setTimeSeries(ts);
 
         LOAD_NODE_STUB_REQUEST = stubFor(WireMock.post("/fmlegacywrapper/api/fmfacade/loadNode")
-                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(nodeResponse)))).getRequest();
+                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(nodeResponse)).withFixedDelay(fixedDelayMilliseconds))).getRequest();
 
         stubFor(WireMock.post("/fmlegacywrapper/api/fmfacade/saveNode")
                 .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(nodeResponse))));
@@ -86,6 +129,40 @@ public class CommonStubs {
                 .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(List.of(nodeResponse))))).getRequest();
     }
 
+    /**
+     * Stub the legacy loadNodes call for each expected chunk, answering only the nodes of that chunk.
+     * Any other request body is not stubbed, so a chunk with the wrong ids makes the call fail.
+     *
+     * @param nodeResponses, the nodes known by legacy
+     * @param chunks,        the node ids expected in each loadNodes request
+     */
+    public static void stubNodes(List<NodeResponse> nodeResponses, List<List<String>> chunks) throws Exception {
+        for (List<String> chunk : chunks) {
+            List<NodeResponse> chunkResponses = nodeResponses.stream()
+                    .filter(nodeResponse -> chunk.contains(nodeResponse.getId()))
+                    .toList();
+            stubFor(post(LOAD_NODES_URL)
+                    .withRequestBody(loadNodesBody(chunk))
+                    .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(chunkResponses))));
+        }
+        LOAD_NODES_STUB_REQUEST = postRequestedFor(urlEqualTo(LOAD_NODES_URL)).build();
+    }
+
+    /**
+     * @return the body of a loadNodes request for {@code nodeIds}, in any order
+     */
+    public static StringValuePattern loadNodesBody(List<String> nodeIds) throws JsonProcessingException {
+        return equalToJson(OBJECT_MAPPER.writeValueAsString(nodeIds), true, false);
+    }
+
+    /**
+     * Stub the legacy patchNodes call, {@code status} other than 200 making the service fall back to saveNodes.
+     */
+    public static void stubPatchNodes(int status) {
+        PATCH_NODES_STUB_REQUEST = stubFor(post("/fmlegacywrapper/api/fmfacade/patchNodes")
+                .willReturn(status == 200 ? okJson("[]") : aResponse().withStatus(status))).getRequest();
+    }
+
     public static void stubAggregate() throws IOException {
         // New nodes created in legacy
         AggregateResponse aggregateResponse1 = new AggregateResponse();
@@ -102,8 +179,12 @@ public class CommonStubs {
         aggregateResponse3.setKey("NODE_CODE");
         aggregateResponse3.setDescription("DESCRIPTION");
 
+        stubAggregate(List.of(aggregateResponse1, aggregateResponse2, aggregateResponse3));
+    }
+
+    public static void stubAggregate(List<AggregateResponse> aggregateResponses) throws IOException {
         stubFor(WireMock.post("/fmlegacywrapper/api/fmfacade/getNodes")
-                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(List.of(aggregateResponse1, aggregateResponse2, aggregateResponse3)))));
+                .willReturn(okJson(OBJECT_MAPPER.writeValueAsString(aggregateResponses))));
     }
 
     public static NodeResponse.TimeSeries generateTimeSeries(TimeSeriesType timeSeriesType, Date startDate, Date endDate, Double[] values) {
@@ -115,4 +196,26 @@ public class CommonStubs {
         timeSeries.setValues(values);
         return timeSeries;
     }
+
+    /**
+     * Build a DAILY time series from primitive values, the periods flagged in {@code missingPeriods} being sent as null.
+     * Days are stepped on the calendar and sent at UTC midnight, so the dates stay aligned whatever the JVM time zone.
+     *
+     * @param startDate,      the day of the first value
+     * @param values,         one value per day starting at {@code startDate}
+     * @param missingPeriods, indexes of the periods without value
+     * @return the time series as returned by the legacy wrapper
+     */
+    public static NodeResponse.TimeSeries generateDailyTimeSeries(TimeSeriesType timeSeriesType, LocalDate startDate, double[] values, BitSet missingPeriods) {
+        Double[] boxedValues = new Double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxedValues[i] = missingPeriods.get(i) ? null : values[i];
+        }
+        LocalDate endDate = startDate.plusDays(values.length - 1L);
+        return generateTimeSeries(timeSeriesType, toUtcDate(startDate), toUtcDate(endDate), boxedValues);
+    }
+
+    private static Date toUtcDate(LocalDate localDate) {
+        return Date.from(localDate.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
 }
@@ -0,0 +1,86 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import org.apache.http.HttpHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.*;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Demand sensing catalog")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = "demandsensing.catalog.refresh-interval=200ms")
+class DemandSensingCatalogTest extends AbstractComponentTest {
+
+    private static final String MODELS_URL = "/demandsensing/models/?chronologies=DAILY%2CWEEKLY%2CMONTHLY";
+    private static final String INDICATORS_URL = "/demandsensing/indicators/";
+
+    private void prepareConfig() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            Node node = newNode("ID" + i, "NODE_ID" + i, "CODE" + i);
+            node.setChronology(ChronoType.WEEKLY);
+            node.setModelByChrono(Map.of(ChronoType.DAILY, "sarimax", ChronoType.WEEKLY, "demandsensing"));
+            nodes.add(node);
+        }
+        insertConfig(nodes, ChronoType.DAILY, ChronoType.WEEKLY);
+    }
+
+    @Test
+    @DisplayName("Models and indicators are loaded once for all node reads")
+    void catalogsAreLoadedOnce() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubDemandSensingConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        mockMvc.perform(get("/nodes/NODE_ID1")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.model").value("demandsensing"))
+                .andExpect(jsonPath("$.kpi").isArray());
+        mockMvc.perform(get("/nodes/NODE_ID2")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.model").value("demandsensing"));
+
+        // Then
+        verify(1, getRequestedFor(urlEqualTo(MODELS_URL)).withoutHeader(HttpHeaders.IF_NONE_MATCH));
+        verify(1, getRequestedFor(urlEqualTo(INDICATORS_URL)).withoutHeader(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    @DisplayName("Catalogs are refreshed in the background with their ETag")
+    void catalogsAreRefreshedWithEtag() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubDemandSensingConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        mockMvc.perform(get("/nodes/NODE_ID1")).andExpect(status().isOk());
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            verify(moreThanOrExactly(1), getRequestedFor(urlEqualTo(MODELS_URL))
+                    .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo(MODELS_ETAG)));
+            verify(moreThanOrExactly(1), getRequestedFor(urlEqualTo(INDICATORS_URL))
+                    .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo(INDICATORS_ETAG)));
+        });
+        verify(1, getRequestedFor(urlEqualTo(MODELS_URL)).withoutHeader(HttpHeaders.IF_NONE_MATCH));
+        mockMvc.perform(get("/nodes/NODE_ID2")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.model").value("demandsensing"));
+    }
+}
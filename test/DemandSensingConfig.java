@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Objects;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 
 public class DemandSensingConfig {
 
@@ -38,4 +39,49 @@ public class DemandSensingConfig {
                         " }}]}")
         .withTransformers("response-template")));
     }
+
+    public static void stubCalcPerimeterBatch() {
+        stubFor(post("/demandsensing/calcperim/batch/")
+                .willReturn(okJson("[" +
+                        "{{#each (jsonPath request.body '$.items') as |item|}}" +
+                        "{\"key\": \"{{item.key}}\", \"values\": [20.0]}" +
+                        "{{#unless @last}},{{/unless}}" +
+                        "{{/each}}" +
+                        "]")
+        .withTransformers("response-template")));
+    }
+
+    /**
+     * Stub mass-dynamiceffectproposal for a chunk of nodes, every exceptional event of every node getting [1.0, 2.0].
+     * When {@code failFirstCall} is set, the first call answers 500 and the following ones succeed.
+     */
+    public static void stubEffectProposalByChunk(boolean failFirstCall) {
+        String url = "/demandsensing/mass-dynamiceffectproposal/";
+        String body = "{\"id\": \"batchId\"," +
+                "\"nodes\": [" +
+                "{{#each (jsonPath request.body '$.nodes') as |node|}}" +
+                "{\"key\": \"{{node.key}}\"," +
+                "\"eeReplacementValues\": { {{#each node.eeDates as |dates eventId|}}" +
+                "\"{{{eventId}}}\": [1.0, 2.0]" +
+                "{{#unless @last}},{{/unless}}" +
+                "{{/each}} }}" +
+                "{{#unless @last}},{{/unless}}" +
+                "{{/each}}" +
+                "]}";
+
+        if (failFirstCall) {
+            stubFor(post(url)
+                    .inScenario("effectProposal")
+                    .whenScenarioStateIs(STARTED)
+                    .willReturn(serverError())
+                    .willSetStateTo("recovered"));
+            stubFor(post(url)
+                    .inScenario("effectProposal")
+                    .whenScenarioStateIs("recovered")
+                    .willReturn(okJson(body).withTransformers("response-template")));
+        } else {
+            stubFor(post(url)
+                    .willReturn(okJson(body).withTransformers("response-template")));
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubLegacyConfig;
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubNode;
+import static com.futurmaster.demandplanning.componenttest.utils.DemandSensingConfig.stubEffectProposalByChunk;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Effect proposal job")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = {
+        "jobs.effect-proposal.chunk-size=2",
+        "jobs.effect-proposal.parallelism=2"
+})
+class EffectProposalJobTest extends AbstractComponentTest {
+
+    private static final int NB_NODES = 5;
+    private static final int NB_CHUNKS = 3;
+    private static final String EFFECT_PROPOSAL_URL = "/demandsensing/mass-dynamiceffectproposal/";
+    private static final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+
+    private List<Node> nodes;
+
+    private void prepareConfig() throws Exception {
+        nodes = new ArrayList<>();
+        for (int i = 0; i < NB_NODES; i++) {
+            Node node = newNode("ID" + i, "NODE_ID" + i, "CODE" + i);
+            node.setValidatorDisabled(true);
+            node.setExceptionalEvents(List.of(ExceptionalEvent.builder()
+                    .id("ee" + i)
+                    .startDate(sdf.parse("02/01/2021"))
+                    .endDate(sdf.parse("03/01/2021"))
+                    .values(List.of(15., 15.))
+                    .effectValues(List.of(5., 5.))
+                    .build()));
+            nodes.add(node);
+        }
+        insertConfig(nodes, ChronoType.DAILY);
+    }
+
+    private String startJob() throws Exception {
+        List<String> nodeIds = nodes.stream().map(Node::getId).toList();
+        ResultActions result = mockMvc.perform(post("/nodes/jobs/effect-proposal")
+                .content(objectMapper.writeValueAsString(Map.of("nodeIds", nodeIds)))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").exists());
+        return objectMapper.readTree(result.andReturn().getResponse().getContentAsString()).get("id").asText();
+    }
+
+    @Test
+    @DisplayName("The selection is proposed by chunks and replacement values are applied")
+    void proposeByChunks() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubEffectProposalByChunk(false);
+        prepareConfig();
+
+        // When
+        JsonNode job = awaitJob(startJob());
+
+        // Then
+        assertThat(job.get("status").asText()).isEqualTo("DONE");
+        assertThat(job.get("totalChunks").asInt()).isEqualTo(NB_CHUNKS);
+        assertThat(job.get("completedChunks").asInt()).isEqualTo(NB_CHUNKS);
+        verify(NB_CHUNKS, postRequestedFor(urlEqualTo(EFFECT_PROPOSAL_URL)));
+        assertThat(mongoTemplate.findAll(Node.class))
+                .allSatisfy(node -> assertThat(node.getExceptionalEvents().get(0).getValues()).containsExactly(1., 2.));
+    }
+
+    @Test
+    @DisplayName("A resumed job only replays the chunks that failed")
+    void resumeFailedJob() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubEffectProposalByChunk(true);
+        prepareConfig();
+        String jobId = startJob();
+        JsonNode failedJob = awaitJob(jobId);
+        assertThat(failedJob.get("status").asText()).isEqualTo("FAILED");
+        assertThat(failedJob.get("completedChunks").asInt()).isEqualTo(NB_CHUNKS - 1);
+
+        // When
+        mockMvc.perform(post("/jobs/{id}/resume", jobId))
+                .andExpect(status().isAccepted());
+        JsonNode job = awaitJob(jobId, Set.of("DONE"));
+
+        // Then
+        assertThat(job.get("completedChunks").asInt()).isEqualTo(NB_CHUNKS);
+        List<Set<String>> requestedChunks = findAll(postRequestedFor(urlEqualTo(EFFECT_PROPOSAL_URL))).stream()
+                .map(this::requestedNodeKeys)
+                .toList();
+        // Every chunk was requested once, then only the chunk of the first (failed) call was requested again
+        assertThat(requestedChunks).hasSize(NB_CHUNKS + 1);
+        assertThat(Set.copyOf(requestedChunks)).hasSize(NB_CHUNKS);
+        assertThat(requestedChunks.get(NB_CHUNKS)).isEqualTo(requestedChunks.get(0));
+        assertThat(mongoTemplate.findAll(Node.class))
+                .allSatisfy(node -> assertThat(node.getExceptionalEvents().get(0).getValues()).containsExactly(1., 2.));
+    }
+
+    private Set<String> requestedNodeKeys(LoggedRequest request) {
+        try {
+            Set<String> keys = new HashSet<>();
+            objectMapper.readTree(request.getBodyAsString()).path("nodes")
+                    .forEach(node -> keys.add(node.path("key").asText()));
+            return keys;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
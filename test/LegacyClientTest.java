@@ -0,0 +1,153 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubLegacyConfig;
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubNode;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Legacy client")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = {
+        "legacy.client.endpoints.loadNode.timeout=2s",
+        "legacy.client.endpoints.loadNode.max-concurrent-calls=" + LegacyClientTest.MAX_CONCURRENT_LOAD_NODE_CALLS
+})
+class LegacyClientTest extends AbstractComponentTest {
+
+    private static final int LEGACY_DELAY_MILLISECONDS = 500;
+    static final int MAX_CONCURRENT_LOAD_NODE_CALLS = 4;
+    private static final String LOAD_NODE_URL = "/fmlegacywrapper/api/fmfacade/loadNode";
+    private static final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+
+    private void prepareConfig() {
+        insertConfig(List.of(newNode("ID", "NODE_ID", "NODE_CODE")), ChronoType.DAILY);
+    }
+
+    private Date loggedDate(String url) {
+        return WireMock.getAllServeEvents().stream()
+                .map(ServeEvent::getRequest)
+                .filter(request -> request.getUrl().equals(url))
+                .findFirst()
+                .orElseThrow()
+                .getLoggedDate();
+    }
+
+    private List<ServeEvent> serveEvents(String url) {
+        return WireMock.getAllServeEvents().stream()
+                .filter(event -> event.getRequest().getUrl().equals(url))
+                .sorted(Comparator.comparing(event -> event.getRequest().getLoggedDate()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the highest number of calls the legacy wrapper was answering at the same time
+     */
+    private int maxInFlight(List<ServeEvent> events) {
+        int max = 0;
+        for (ServeEvent event : events) {
+            long time = event.getRequest().getLoggedDate().getTime();
+            int inFlight = (int) events.stream()
+                    .filter(other -> other.getRequest().getLoggedDate().getTime() <= time
+                            && other.getRequest().getLoggedDate().getTime() + other.getTiming().getTotalTime() > time)
+                    .count();
+            max = Math.max(max, inFlight);
+        }
+        return max;
+    }
+
+    @Test
+    @DisplayName("Legacy calls of a node read are sent in parallel")
+    void legacyCallsAreSentInParallel() throws Exception {
+        // Given
+        stubLegacyConfig(null, null, null, null, LEGACY_DELAY_MILLISECONDS);
+        stubNode(sdf.parse("01/01/2021"), sdf.parse("03/01/2021"), null, LEGACY_DELAY_MILLISECONDS);
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/NODE_ID"));
+
+        // Then
+        result.andExpect(status().isOk());
+        long gap = Math.abs(loggedDate(LOAD_NODE_URL).getTime()
+                - loggedDate("/fmlegacywrapper/api/fmfacade/Common_GetFMConfig").getTime());
+        assertThat(gap).isLessThan(LEGACY_DELAY_MILLISECONDS);
+    }
+
+    @Test
+    @DisplayName("A legacy call slower than its endpoint timeout fails the request")
+    void legacyCallTimeout() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode(sdf.parse("01/01/2021"), sdf.parse("03/01/2021"), null, 3000);
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/NODE_ID"));
+
+        // Then
+        result.andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    @DisplayName("Concurrent node reads never exceed the loadNode concurrency limit")
+    void loadNodeConcurrencyIsCapped() throws Exception {
+        // Given
+        int nbRequests = MAX_CONCURRENT_LOAD_NODE_CALLS * 2;
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < nbRequests; i++) {
+            nodes.add(newNode("ID" + i, "NODE_ID" + i, "CODE" + i));
+        }
+        stubLegacyConfig();
+        stubNode(sdf.parse("01/01/2021"), sdf.parse("03/01/2021"), null, LEGACY_DELAY_MILLISECONDS);
+        insertConfig(nodes, ChronoType.DAILY);
+        ExecutorService executor = newSecuredExecutor(nbRequests);
+
+        // When
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (Node node : nodes) {
+                statuses.add(executor.submit((Callable<Integer>) () -> {
+                    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+                    return mockMvc.perform(get("/nodes/{id}", node.getNodeId())).andReturn().getResponse().getStatus();
+                }));
+            }
+            for (Future<Integer> status : statuses) {
+                assertThat(status.get()).isEqualTo(200);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        List<ServeEvent> loadNodeCalls = serveEvents(LOAD_NODE_URL);
+        assertThat(loadNodeCalls).hasSize(nbRequests);
+        assertThat(maxInFlight(loadNodeCalls)).isLessThanOrEqualTo(MAX_CONCURRENT_LOAD_NODE_CALLS);
+        // The calls over the limit wait for a slot, so they reach the legacy wrapper one delay later
+        long firstCall = loadNodeCalls.get(0).getRequest().getLoggedDate().getTime();
+        long lastCall = loadNodeCalls.get(nbRequests - 1).getRequest().getLoggedDate().getTime();
+        assertThat(lastCall - firstCall).isGreaterThanOrEqualTo(LEGACY_DELAY_MILLISECONDS - 50L);
+    }
+}
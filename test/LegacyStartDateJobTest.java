@@ -0,0 +1,143 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubLegacyConfig;
+import static com.futurmaster.demandplanning.model.ChronoType.DAILY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Legacy start date job")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = {
+        "jobs.legacy-start-date.partitions=2",
+        "jobs.legacy-start-date.batch-size=2"
+})
+class LegacyStartDateJobTest extends AbstractComponentTest {
+
+    private static final int NB_OUTDATED_NODES = 5;
+    private static final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+
+    private void prepareConfig() throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i <= NB_OUTDATED_NODES; i++) {
+            // The last node only holds items after the legacy history start date
+            boolean outdated = i < NB_OUTDATED_NODES;
+            Node node = newNode("ID" + i, "NODE_ID" + i, "CODE" + i);
+            node.setValidatorDisabled(true);
+            node.setPerimeters(List.of(Perimeter.builder()
+                    .id("p" + i)
+                    .date(sdf.parse(outdated ? "12/12/2020" : "12/01/2021"))
+                    .value(1.)
+                    .status(Perimeter.Status.VALIDATED)
+                    .description("desc")
+                    .build()));
+            node.setExceptionalEvents(List.of(ExceptionalEvent.builder()
+                    .startDate(sdf.parse(outdated ? "08/12/2020" : "08/01/2021"))
+                    .endDate(sdf.parse(outdated ? "08/12/2020" : "08/01/2021"))
+                    .values(List.of(1.))
+                    .effectValues(List.of(10.))
+                    .build()));
+            node.setSeasonalities(List.of(Seasonality.builder()
+                    .id("s" + i)
+                    .startDate(sdf.parse(outdated ? "01/12/2020" : "01/02/2021"))
+                    .endDate(sdf.parse(outdated ? "08/12/2020" : "08/02/2021"))
+                    .type(SeasonalityType.builder().title("SEAS1").build())
+                    .build()));
+            nodes.add(node);
+        }
+        insertConfig(nodes, ChronoType.DAILY);
+    }
+
+    @Test
+    @DisplayName("Items before the legacy history start date are trimmed on every node")
+    void shouldTrimAllNodes_whenLegacyHistStartDateMoves() throws Exception {
+        // Given
+        LocalDate startHistory = DAILY.toLocalDate(sdf.parse("01/01/2021"));
+        LocalDate endHistory = DAILY.toLocalDate(sdf.parse("01/01/2022"));
+        stubLegacyConfig(startHistory, endHistory, null, null);
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(post("/nodes/jobs/legacy-start-date"));
+
+        // Then
+        result.andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").exists());
+        String jobId = objectMapper.readTree(result.andReturn().getResponse().getContentAsString()).get("id").asText();
+        JsonNode job = awaitJob(jobId);
+        assertThat(job.get("status").asText()).isEqualTo("DONE");
+        assertThat(job.get("processed").asInt()).isEqualTo(NB_OUTDATED_NODES + 1);
+        assertThat(job.get("updated").asInt()).isEqualTo(NB_OUTDATED_NODES);
+
+        Query outdatedNodes = Query.query(Criteria.where("notUpToDate").is(true));
+        assertThat(mongoTemplate.count(outdatedNodes, Node.class)).isEqualTo(NB_OUTDATED_NODES);
+        assertThat(mongoTemplate.findAll(Node.class))
+                .filteredOn(node -> !node.getId().equals("ID" + NB_OUTDATED_NODES))
+                .allSatisfy(node -> {
+                    assertThat(node.getPerimeters()).isEmpty();
+                    assertThat(node.getExceptionalEvents()).isEmpty();
+                    assertThat(node.getSeasonalities()).isEmpty();
+                });
+        Node upToDateNode = mongoTemplate.findById("ID" + NB_OUTDATED_NODES, Node.class);
+        assertThat(upToDateNode).isNotNull();
+        assertThat(upToDateNode.getPerimeters()).hasSize(1);
+        assertThat(upToDateNode.getExceptionalEvents()).hasSize(1);
+        assertThat(upToDateNode.getSeasonalities()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("An exceptional event spanning the legacy history start date only loses its leading periods")
+    void shouldTrimLeadingPeriods_whenExceptionalEventSpansLegacyHistStartDate() throws Exception {
+        // Given
+        LocalDate startHistory = DAILY.toLocalDate(sdf.parse("01/01/2021"));
+        LocalDate endHistory = DAILY.toLocalDate(sdf.parse("01/01/2022"));
+        stubLegacyConfig(startHistory, endHistory, null, null);
+        Node node = newNode("ID", "NODE_ID", "NODE_CODE");
+        node.setValidatorDisabled(true);
+        node.setExceptionalEvents(List.of(ExceptionalEvent.builder()
+                .startDate(sdf.parse("26/12/2020"))
+                .endDate(sdf.parse("04/01/2021"))
+                .values(List.of(1., 2., 3., 4., 5., 6., 7., 8., 9., 10.))
+                .effectValues(List.of(10., 20., 30., 40., 50., 60., 70., 80., 90., 100.))
+                .build()));
+        insertConfig(List.of(node), ChronoType.DAILY);
+
+        // When
+        ResultActions result = mockMvc.perform(post("/nodes/jobs/legacy-start-date"));
+
+        // Then
+        result.andExpect(status().isAccepted());
+        String jobId = objectMapper.readTree(result.andReturn().getResponse().getContentAsString()).get("id").asText();
+        JsonNode job = awaitJob(jobId);
+        assertThat(job.get("status").asText()).isEqualTo("DONE");
+        assertThat(job.get("updated").asInt()).isEqualTo(1);
+
+        Node trimmedNode = mongoTemplate.findById("ID", Node.class);
+        assertThat(trimmedNode).isNotNull();
+        assertThat(trimmedNode.getNotUpToDate()).isTrue();
+        // The 6 periods before 01/01/2021 are removed, the remaining ones keep their values
+        assertThat(trimmedNode.getExceptionalEvents()).singleElement().satisfies(ee -> {
+            assertThat(ee.getStartDate()).isEqualTo(sdf.parse("01/01/2021"));
+            assertThat(ee.getEndDate()).isEqualTo(sdf.parse("04/01/2021"));
+            assertThat(ee.getValues()).containsExactly(7., 8., 9., 10.);
+            assertThat(ee.getEffectValues()).containsExactly(70., 80., 90., 100.);
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.futurmaster.legacyclient.node.NodeResponse;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.*;
+import static com.futurmaster.legacyclient.node.TimeSeriesType.CLEANSED_HISTORY;
+import static com.futurmaster.legacyclient.node.TimeSeriesType.HISTORY;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@DisplayName("Node batch")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = "legacy.load-nodes.chunk-size=2")
+class NodeBatchTest extends AbstractComponentTest {
+
+    private static final List<String> NODE_IDS = List.of("NODE_ID1", "NODE_ID2", "NODE_ID3");
+    private static final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+
+    private void prepareConfig(List<List<String>> chunks) throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        List<NodeResponse> nodeResponses = new ArrayList<>();
+        for (String nodeId : NODE_IDS) {
+            String code = nodeId.replace("NODE_ID", "CODE");
+            nodes.add(newNode("ID_" + nodeId, nodeId, code));
+
+            NodeResponse nodeResponse = new NodeResponse();
+            nodeResponse.setId(nodeId);
+            nodeResponse.setCode(code);
+            nodeResponse.setTimeSeries(List.of(
+                    generateTimeSeries(HISTORY, sdf.parse("01/01/2021"), sdf.parse("03/01/2021"), new Double[]{10.0, 20.0, null}),
+                    generateTimeSeries(CLEANSED_HISTORY, sdf.parse("01/01/2021"), sdf.parse("03/01/2021"), new Double[]{10.0, 20.0, null})));
+            nodeResponses.add(nodeResponse);
+        }
+
+        insertConfig(nodes, ChronoType.DAILY, ChronoType.WEEKLY);
+        stubNodes(nodeResponses, chunks);
+    }
+
+    private List<JsonNode> performBatch(List<String> ids) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post("/nodes/batch")
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "ids", ids,
+                                "alternativeId", ALT_ID,
+                                "chronology", ChronoType.DAILY)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        ResultActions result = mockMvc.perform(asyncDispatch(mvcResult));
+
+        result.andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+
+        String content = result.andReturn().getResponse().getContentAsString();
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (!line.isBlank()) {
+                nodes.add(objectMapper.readTree(line));
+            }
+        }
+        return nodes;
+    }
+
+    @Test
+    @DisplayName("Fetch several nodes with one legacy call per chunk")
+    void fetchNodesByChunk() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        List<String> firstChunk = List.of("NODE_ID1", "NODE_ID2");
+        List<String> secondChunk = List.of("NODE_ID3");
+        prepareConfig(List.of(firstChunk, secondChunk));
+
+        // When
+        List<JsonNode> nodes = performBatch(NODE_IDS);
+
+        // Then
+        assertThat(nodes)
+                .extracting(node -> node.get("nodeId").asText())
+                .containsExactlyInAnyOrderElementsOf(NODE_IDS);
+        assertThat(nodes)
+                .allSatisfy(node -> assertThat(node.at("/timeSeries/HISTORY/values").size()).isEqualTo(3));
+        verify(2, RequestPatternBuilder.like(LOAD_NODES_STUB_REQUEST));
+        verify(1, postRequestedFor(urlEqualTo(LOAD_NODES_URL)).withRequestBody(loadNodesBody(firstChunk)));
+        verify(1, postRequestedFor(urlEqualTo(LOAD_NODES_URL)).withRequestBody(loadNodesBody(secondChunk)));
+        verify(0, RequestPatternBuilder.like(LOAD_NODE_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Unknown nodes are skipped from the batch")
+    void fetchNodesSkipsUnknownNodes() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig(List.of(List.of("NODE_ID1")));
+
+        // When
+        List<JsonNode> nodes = performBatch(Arrays.asList("NODE_ID1", "NOT_EXIST"));
+
+        // Then
+        assertThat(nodes)
+                .extracting(node -> node.get("nodeId").asText())
+                .containsExactly("NODE_ID1");
+        verify(1, RequestPatternBuilder.like(LOAD_NODES_STUB_REQUEST));
+        verify(1, postRequestedFor(urlEqualTo(LOAD_NODES_URL)).withRequestBody(loadNodesBody(List.of("NODE_ID1"))));
+    }
+}
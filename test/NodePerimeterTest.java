@@ -0,0 +1,206 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.*;
+import static com.futurmaster.demandplanning.componenttest.utils.DemandSensingConfig.stubCalcPerimeterBatch;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Node perimeter")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = {
+        "demandsensing.calcperim.batch.max-size=50",
+        "demandsensing.calcperim.batch.max-wait=200ms",
+        "legacy.save-nodes.batch-size=5"
+})
+class NodePerimeterTest extends AbstractComponentTest {
+
+    private static final int NB_NODES = 8;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<Node> nodes;
+
+    private void prepareConfig() {
+        nodes = new ArrayList<>();
+        for (int i = 0; i < NB_NODES; i++) {
+            nodes.add(newNode("ID" + i, "NODE_ID" + i, "CODE" + i));
+        }
+        insertConfig(nodes, ChronoType.DAILY);
+    }
+
+    private PerimeterDto dynamicPerimeter() throws Exception {
+        return PerimeterDto.builder()
+                .description("New perimeter")
+                .date(DATE_FORMAT.parse("01/01/2021"))
+                .value(10d)
+                .dynamic(true)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Concurrent perimeter saves share demand sensing calcperim calls")
+    void concurrentSavesAreBatched() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubCalcPerimeterBatch();
+        prepareConfig();
+        String perimeter = objectMapper.writeValueAsString(dynamicPerimeter());
+        ExecutorService executor = newSecuredExecutor(NB_NODES);
+
+        // When
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (Node node : nodes) {
+                statuses.add(executor.submit((Callable<Integer>) () -> {
+                    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+                    return mockMvc.perform(post("/nodes/" + node.getId() + "/perimeter")
+                                    .content(perimeter)
+                                    .contentType(MediaType.APPLICATION_JSON))
+                            .andReturn().getResponse().getStatus();
+                }));
+            }
+            for (Future<Integer> status : statuses) {
+                assertThat(status.get()).isEqualTo(200);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        int batchCalls = findAll(postRequestedFor(urlEqualTo("/demandsensing/calcperim/batch/"))).size();
+        assertThat(batchCalls).isBetween(1, NB_NODES - 1);
+        verify(0, postRequestedFor(urlEqualTo("/demandsensing/calcperim/")));
+
+        DistributionSummary batchSize = meterRegistry.find("demandsensing.calcperim.batch.size").summary();
+        assertThat(batchSize).isNotNull();
+        assertThat(batchSize.totalAmount()).isEqualTo(NB_NODES);
+        assertThat(meterRegistry.find("demandsensing.calcperim.batch.wait").timer()).isNotNull();
+        assertThat(mongoTemplate.findAll(Node.class))
+                .allSatisfy(node -> assertThat(node.getPerimeters()).hasSize(1));
+    }
+
+    private ResultActions saveBulkPerimeter(Map<String, Object> selection, PerimeterDto perimeter) throws Exception {
+        return mockMvc.perform(post("/nodes/perimeter/bulk")
+                .content(objectMapper.writeValueAsString(Map.of(
+                        "selection", selection,
+                        "perimeter", perimeter)))
+                .contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("A perimeter is saved on a list of nodes in one job")
+    void saveBulkPerimeterOnNodeIds() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+        PerimeterDto perimeter = PerimeterDto.builder()
+                .description("Bulk perimeter")
+                .date(DATE_FORMAT.parse("01/01/2021"))
+                .value(10d)
+                .build();
+
+        // When
+        ResultActions result = saveBulkPerimeter(Map.of("nodeIds", nodes.stream().map(Node::getNodeId).toList()), perimeter);
+
+        // Then
+        result.andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").exists());
+        JsonNode job = awaitJob(objectMapper.readTree(result.andReturn().getResponse().getContentAsString()).get("id").asText());
+        assertThat(job.get("status").asText()).isEqualTo("DONE");
+        assertThat(job.get("processed").asInt()).isEqualTo(NB_NODES);
+        verify(2, RequestPatternBuilder.like(SAVE_NODES_STUB_REQUEST));
+        assertThat(mongoTemplate.findAll(Node.class))
+                .allSatisfy(node -> assertThat(node.getPerimeters())
+                        .extracting(Perimeter::getDescription, Perimeter::getValue, Perimeter::getStatus)
+                        .containsExactly(tuple(perimeter.getDescription(), perimeter.getValue(), Perimeter.Status.VALIDATED)));
+    }
+
+    @Test
+    @DisplayName("A perimeter is saved on the nodes matching a SearchNode query")
+    void saveBulkPerimeterOnSearchNodeQuery() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+        // Codes not starting with the prefix, one of them containing it
+        List<Node> otherNodes = List.of(
+                newNode("OTHER_ID0", "OTHER_NODE_ID0", "OTHER0"),
+                newNode("OTHER_ID1", "OTHER_NODE_ID1", "XCODE1"));
+        insertNodes(otherNodes, mongoTemplate.findById(CONFIG_ID, DPConfig.class));
+        PerimeterDto perimeter = PerimeterDto.builder()
+                .description("Bulk perimeter")
+                .date(DATE_FORMAT.parse("01/01/2021"))
+                .value(10d)
+                .build();
+
+        // When
+        ResultActions result = saveBulkPerimeter(Map.of("configId", CONFIG_ID, "codePrefix", "CODE"), perimeter);
+
+        // Then
+        result.andExpect(status().isAccepted());
+        JsonNode job = awaitJob(objectMapper.readTree(result.andReturn().getResponse().getContentAsString()).get("id").asText());
+        assertThat(job.get("status").asText()).isEqualTo("DONE");
+        assertThat(job.get("processed").asInt()).isEqualTo(NB_NODES);
+        assertThat(mongoTemplate.findAll(Node.class))
+                .filteredOn(node -> node.getCode().startsWith("CODE"))
+                .hasSize(NB_NODES)
+                .allSatisfy(node -> assertThat(node.getPerimeters()).hasSize(1));
+        assertThat(mongoTemplate.findAll(Node.class))
+                .filteredOn(node -> !node.getCode().startsWith("CODE"))
+                .hasSize(otherNodes.size())
+                .allSatisfy(node -> assertThat(node.getPerimeters()).isNullOrEmpty());
+    }
+
+    @Test
+    @DisplayName("An invalid perimeter is rejected before any job starts")
+    void saveBulkPerimeterWithInvalidPerimeter() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+        PerimeterDto perimeter = PerimeterDto.builder()
+                .description("Bulk perimeter without date")
+                .value(10d)
+                .build();
+
+        // When
+        ResultActions result = saveBulkPerimeter(Map.of("nodeIds", nodes.stream().map(Node::getNodeId).toList()), perimeter);
+
+        // Then
+        result.andExpect(status().isBadRequest());
+        verify(0, RequestPatternBuilder.like(SAVE_NODES_STUB_REQUEST));
+        assertThat(mongoTemplate.findAll(Node.class))
+                .allSatisfy(node -> assertThat(node.getPerimeters()).isNullOrEmpty());
+    }
+}
@@ -0,0 +1,152 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.*;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Node save")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+@TestPropertySource(properties = {
+        "legacy.save-nodes.mode=delta",
+        "mongo.bulk-write.batch-size=" + NodeSaveTest.BULK_WRITE_BATCH_SIZE,
+        "legacy.save-nodes.batch-size=" + NodeSaveTest.NB_BULK_NODES
+})
+class NodeSaveTest extends AbstractComponentTest {
+
+    static final int BULK_WRITE_BATCH_SIZE = 2;
+    static final int NB_BULK_NODES = 5;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Node node;
+
+    private void prepareConfig() {
+        node = newNode("ID", "NODE_ID", "NODE_CODE");
+        insertConfig(List.of(node), ChronoType.DAILY);
+    }
+
+    private ResultActions saveProportionalFactor() throws Exception {
+        PerimeterDto perimeterToSave = PerimeterDto.builder()
+                .description("New perimeter")
+                .date(DATE_FORMAT.parse("02/01/2021"))
+                .value(10d)
+                .build();
+
+        return mockMvc.perform(post("/nodes/" + node.getId() + "/perimeter")
+                .content(objectMapper.writeValueAsString(perimeterToSave))
+                .contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Only the changed series are sent to the legacy wrapper")
+    void saveSendsDelta() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubPatchNodes(200);
+        prepareConfig();
+
+        // When
+        ResultActions result = saveProportionalFactor();
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        verify(1, RequestPatternBuilder.like(PATCH_NODES_STUB_REQUEST)
+                .withRequestBody(matchingJsonPath("$[0].id", equalTo("NODE_ID"))));
+        // The perimeter starts on the second day: CLEANSED_HISTORY changes from period 1, the first period is not sent
+        verify(1, RequestPatternBuilder.like(PATCH_NODES_STUB_REQUEST)
+                .withRequestBody(matchingJsonPath("$[0].changes[?(@.id == 'CLEANSED_HISTORY')]"))
+                .withRequestBody(matchingJsonPath("$[0].changes[?(@.id == 'CLEANSED_HISTORY')].fromPeriod", equalTo("1"))));
+        verify(0, RequestPatternBuilder.like(PATCH_NODES_STUB_REQUEST)
+                .withRequestBody(matchingJsonPath("$[0].changes[?(@.id == 'HISTORY')]")));
+        verify(0, RequestPatternBuilder.like(SAVE_NODES_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Full save is used when the legacy wrapper does not accept patches")
+    void saveFallsBackToFullSave() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubPatchNodes(501);
+        prepareConfig();
+
+        // When
+        ResultActions result = saveProportionalFactor();
+
+        // Then
+        result.andExpect(status().isOk());
+        List<LoggedRequest> patches = findAll(RequestPatternBuilder.like(PATCH_NODES_STUB_REQUEST));
+        List<LoggedRequest> saves = findAll(RequestPatternBuilder.like(SAVE_NODES_STUB_REQUEST));
+        assertThat(patches).hasSize(1);
+        assertThat(saves).hasSize(1);
+        assertThat(saves.get(0).getLoggedDate()).isAfterOrEqualTo(patches.get(0).getLoggedDate());
+    }
+
+    @Test
+    @DisplayName("Node saves are written to Mongo in bulk batches")
+    void saveUsesBulkWrite() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        stubPatchNodes(200);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < NB_BULK_NODES; i++) {
+            nodes.add(newNode("ID" + i, "NODE_ID" + i, "CODE" + i));
+        }
+        insertConfig(nodes, ChronoType.DAILY);
+        PerimeterDto perimeter = PerimeterDto.builder()
+                .description("Bulk perimeter")
+                .date(DATE_FORMAT.parse("02/01/2021"))
+                .value(10d)
+                .build();
+        Timer bulkWrites = meterRegistry.timer("mongo.bulk-write", "collection", "node");
+        long bulkWritesBefore = bulkWrites.count();
+
+        // When
+        ResultActions result = mockMvc.perform(post("/nodes/perimeter/bulk")
+                .content(objectMapper.writeValueAsString(Map.of(
+                        "selection", Map.of("nodeIds", nodes.stream().map(Node::getNodeId).toList()),
+                        "perimeter", perimeter)))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // Then
+        result.andExpect(status().isAccepted());
+        JsonNode job = awaitJob(objectMapper.readTree(result.andReturn().getResponse().getContentAsString()).get("id").asText());
+        assertThat(job.get("status").asText()).isEqualTo("DONE");
+        // 5 nodes written by batches of 2: 2 + 2 + 1
+        assertThat(bulkWrites.count() - bulkWritesBefore).isEqualTo(3);
+        assertThat(mongoTemplate.findAll(Node.class))
+                .hasSize(NB_BULK_NODES)
+                .allSatisfy(node -> assertThat(node.getPerimeters())
+                        .extracting(Perimeter::getDescription)
+                        .containsExactly(perimeter.getDescription()));
+    }
+}
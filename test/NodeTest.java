@@ -1,26 +1,40 @@
 package com.futurmaster.demandplanning.componenttest;
 
 import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.futurmaster.demandplanning.model.*;
 import com.futurmaster.demandplanning.model.externalvariables.ExternalVariable;
 import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.futurmaster.generated.FMProtoNodeOuterClass.FMProtoNode;
+import com.futurmaster.generated.FMProtoNodeOuterClass.FMProtoTimeSeries;
 import com.futurmaster.legacyclient.node.NodeResponse;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
 import org.hamcrest.Matchers;
 import org.hamcrest.core.IsNull;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.io.ByteArrayInputStream;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.*;
 import static com.futurmaster.demandplanning.model.ChronoType.DAILY;
 import static com.futurmaster.legacyclient.node.TimeSeriesType.*;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -57,7 +71,7 @@ class NodeTest extends AbstractComponentTest {
                         .name("CONFIG_NAME")
                         .priority(1)
                         .aggregate("PRODUCT")
-                        .chronologies(List.of(ChronoType.DAILY, ChronoType.WEEKLY))
+                        .chronologies(List.of(ChronoType.DAILY, ChronoType.WEEKLY, ChronoType.MONTHLY))
                         .build())
                 .alternativesConfig(Map.of(ALTERNATIVE_ID, AlternativeConfig.builder()
                         .externalVariables(List.of(ExternalVariable.builder().title("Trip").timeSeriesType(EXTERNAL_VARIABLES_1).version(1).build()))
@@ -161,6 +175,271 @@ class NodeTest extends AbstractComponentTest {
                 .andExpect(jsonPath("$.timeSeries.HISTORY.values").value(Matchers.contains(10.1, 0.0, 20.2)));
     }
 
+    @Test
+    @DisplayName("Scenario 5 : Fetch Node with a multi-year DAILY history")
+    void fetchNodeWithMultiYearDailyHistory() throws Exception {
+        // Given
+        LocalDate startDate = LocalDate.of(2021, 1, 1);
+        int nbPeriods = 3 * 365 + 1;
+        double[] values = new double[nbPeriods];
+        BitSet missingPeriods = new BitSet(nbPeriods);
+        for (int i = 0; i < nbPeriods; i++) {
+            values[i] = i % 100 + 0.5;
+            if (i % 7 == 3) {
+                missingPeriods.set(i);
+            }
+        }
+        BitSet allMissing = new BitSet(nbPeriods);
+        allMissing.set(0, nbPeriods);
+        List<NodeResponse.TimeSeries> ts = List.of(
+                generateDailyTimeSeries(HISTORY, startDate, values, missingPeriods),
+                generateDailyTimeSeries(CLEANSED_HISTORY, startDate, values, missingPeriods),
+                generateDailyTimeSeries(EE_EFFECT, startDate, new double[nbPeriods], allMissing),
+                generateDailyTimeSeries(INDISTINCT_DATA_STORAGE_1, startDate, values, missingPeriods));
+        stubLegacyConfig();
+        stubNode(ts.get(0).getDateStart(), ts.get(0).getDateEnd(), ts);
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId()).param("alternativeId", node.getAlternativeId()));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values.length()").value(nbPeriods))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values[3]").value(0.0))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values[4]").value(4.5))
+                .andExpect(jsonPath("$.timeSeries.CLEANSED_HISTORY.values.length()").value(nbPeriods))
+                .andExpect(jsonPath("$.timeSeries.CLEANSED_HISTORY.values[1094]").value(94.5))
+                .andExpect(jsonPath("$.timeSeries.CLEANSED_HISTORY.values[1095]").value(0.0));
+    }
+
+    @Test
+    @DisplayName("Scenario 6 : Fetch Node fields without time series")
+    void fetchNodeFieldsWithoutTimeSeries() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId()).param("fields", "id,nodeId,chronology,modelByChrono"));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.id").exists())
+                .andExpect(jsonPath("$.nodeId").value(node.getNodeId()))
+                .andExpect(jsonPath("$.chronology").value(DAILY.toString()))
+                .andExpect(jsonPath("$.timeSeries").doesNotExist())
+                .andExpect(jsonPath("$.perimeters").doesNotExist())
+                .andExpect(jsonPath("$.exceptionalEvents").doesNotExist());
+        verify(0, RequestPatternBuilder.like(LOAD_NODE_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Scenario 7 : Fetch Node fields with time series")
+    void fetchNodeFieldsWithTimeSeries() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId())
+                .param("alternativeId", node.getAlternativeId())
+                .param("fields", "id,nodeId,timeSeries"));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.nodeId").value(node.getNodeId()))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values").value(Matchers.contains(10.10, 0.0, 20.20)))
+                .andExpect(jsonPath("$.seasonalities").doesNotExist());
+        verify(1, RequestPatternBuilder.like(LOAD_NODE_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Scenario 8 : Switch from DAILY to WEEKLY chronology without reloading the node")
+    void switchChronologyFromDailyToWeekly() throws Exception {
+        // Given
+        Date startDate = sdf.parse("04/01/2021");
+        Date endDate = sdf.parse("17/01/2021");
+        Double[] values = new Double[]{1.0, 2.0, null, 4.0, 5.0, 6.0, 7.0, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0};
+        List<NodeResponse.TimeSeries> ts = List.of(
+                generateTimeSeries(HISTORY, startDate, endDate, values),
+                generateTimeSeries(CLEANSED_HISTORY, startDate, endDate, values),
+                generateTimeSeries(INDISTINCT_DATA_STORAGE_1, startDate, endDate, values));
+        stubLegacyConfig();
+        stubNode(startDate, endDate, ts);
+        prepareConfig();
+        mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(DAILY)))
+                .andExpect(status().isOk());
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(ChronoType.WEEKLY)));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.chronology").value(ChronoType.WEEKLY.toString()))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values").value(Matchers.contains(25.0, 14.0)))
+                .andExpect(jsonPath("$.timeSeries.CLEANSED_HISTORY.values").value(Matchers.contains(25.0, 14.0)));
+        verify(1, RequestPatternBuilder.like(LOAD_NODE_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Scenario 8 : Switch from DAILY to MONTHLY chronology without reloading the node")
+    void switchChronologyFromDailyToMonthly() throws Exception {
+        // Given
+        Date startDate = sdf.parse("20/01/2021");
+        Date endDate = sdf.parse("02/02/2021");
+        Double[] values = new Double[]{1.0, 2.0, null, 4.0, 5.0, 6.0, 7.0, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0};
+        List<NodeResponse.TimeSeries> ts = List.of(
+                generateTimeSeries(HISTORY, startDate, endDate, values),
+                generateTimeSeries(CLEANSED_HISTORY, startDate, endDate, values),
+                generateTimeSeries(INDISTINCT_DATA_STORAGE_1, startDate, endDate, values));
+        stubLegacyConfig();
+        stubNode(startDate, endDate, ts);
+        prepareConfig();
+        mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(DAILY)))
+                .andExpect(status().isOk());
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(ChronoType.MONTHLY)));
+
+        // Then 12 days of January then 2 days of February
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.chronology").value(ChronoType.MONTHLY.toString()))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values").value(Matchers.contains(35.0, 4.0)))
+                .andExpect(jsonPath("$.timeSeries.CLEANSED_HISTORY.values").value(Matchers.contains(35.0, 4.0)));
+        verify(1, RequestPatternBuilder.like(LOAD_NODE_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Scenario 8 : A derived chronology is recomputed once the node version changes")
+    void switchChronologyAfterNodeVersionChange() throws Exception {
+        // Given
+        Date startDate = sdf.parse("04/01/2021");
+        Date endDate = sdf.parse("17/01/2021");
+        Double[] values = new Double[]{1.0, 2.0, null, 4.0, 5.0, 6.0, 7.0, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0};
+        stubLegacyConfig();
+        stubNode(startDate, endDate, List.of(
+                generateTimeSeries(HISTORY, startDate, endDate, values),
+                generateTimeSeries(CLEANSED_HISTORY, startDate, endDate, values)));
+        prepareConfig();
+        mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(DAILY)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(ChronoType.WEEKLY)))
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values").value(Matchers.contains(25.0, 14.0)));
+
+        // Legacy now holds other values and the node gets a new version
+        Double[] newValues = new Double[]{3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0, 3.0};
+        stubNode(startDate, endDate, List.of(
+                generateTimeSeries(HISTORY, startDate, endDate, newValues),
+                generateTimeSeries(CLEANSED_HISTORY, startDate, endDate, newValues)));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(node.getId())), new Update().inc("version", 1), Node.class);
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId()).param("chronology", String.valueOf(ChronoType.WEEKLY)));
+
+        // Then the weekly series comes from the new version, not from the cached one
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.timeSeries.HISTORY.values").value(Matchers.contains(21.0, 21.0)))
+                .andExpect(jsonPath("$.timeSeries.CLEANSED_HISTORY.values").value(Matchers.contains(21.0, 21.0)));
+        verify(2, RequestPatternBuilder.like(LOAD_NODE_STUB_REQUEST));
+    }
+
+    @Test
+    @DisplayName("Scenario 9 : Fetch Node with gzip compression")
+    void fetchNodeWithGzipCompression() throws Exception {
+        // Given
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId())
+                .param("alternativeId", node.getAlternativeId())
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, Matchers.containsString(HttpHeaders.ACCEPT_ENCODING)));
+
+        byte[] body = result.andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream content = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            JsonNode actualNode = objectMapper.readTree(content);
+            assertThat(actualNode.get("nodeId").asText()).isEqualTo(node.getNodeId());
+            assertThat(actualNode.at("/timeSeries/HISTORY/values"))
+                    .extracting(JsonNode::asDouble)
+                    .containsExactly(10.10, 0.0, 20.20);
+        }
+    }
+
+    @Test
+    @DisplayName("Scenario 10 : Fetch Node as CBOR")
+    void fetchNodeAsCbor() throws Exception {
+        // Given
+        MediaType cbor = MediaType.valueOf("application/cbor");
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId())
+                .param("alternativeId", node.getAlternativeId())
+                .accept(cbor));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(cbor));
+
+        JsonNode actualNode = new ObjectMapper(new CBORFactory()).readTree(result.andReturn().getResponse().getContentAsByteArray());
+        assertThat(actualNode.get("nodeId").asText()).isEqualTo(node.getNodeId());
+        assertThat(actualNode.at("/timeSeries/CLEANSED_HISTORY/version").asInt()).isEqualTo(2);
+        assertThat(actualNode.at("/timeSeries/HISTORY/values"))
+                .extracting(JsonNode::asDouble)
+                .containsExactly(10.10, 0.0, 20.20);
+    }
+
+    @Test
+    @DisplayName("Scenario 11 : Fetch Node as protobuf")
+    void fetchNodeAsProtobuf() throws Exception {
+        // Given
+        MediaType protobuf = MediaType.valueOf("application/x-protobuf");
+        stubLegacyConfig();
+        stubNode();
+        prepareConfig();
+
+        // When
+        ResultActions result = mockMvc.perform(get("/nodes/" + node.getNodeId())
+                .param("alternativeId", node.getAlternativeId())
+                .accept(protobuf));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(protobuf));
+
+        FMProtoNode actualNode = FMProtoNode.parseFrom(result.andReturn().getResponse().getContentAsByteArray());
+        assertThat(actualNode.getNodeId()).isEqualTo(node.getNodeId());
+        assertThat(actualNode.getTimeSeriesMap()).containsKeys(HISTORY.name(), CLEANSED_HISTORY.name(), EE_EFFECT.name());
+
+        // HISTORY comes from INDISTINCT_DATA_STORAGE_1 for this alternative: 10.10, null, 20.20
+        FMProtoTimeSeries history = actualNode.getTimeSeriesMap().get(HISTORY.name());
+        assertThat(history.getValuesList()).containsExactly(10.10, 0.0, 20.20);
+        assertThat(BitSet.valueOf(history.getNullBitmap().toByteArray())).isEqualTo(BitSet.valueOf(new long[]{0b010}));
+
+        FMProtoTimeSeries cleansedHistory = actualNode.getTimeSeriesMap().get(CLEANSED_HISTORY.name());
+        assertThat(cleansedHistory.getVersion()).isEqualTo(2);
+
+        FMProtoTimeSeries eeEffect = actualNode.getTimeSeriesMap().get(EE_EFFECT.name());
+        assertThat(eeEffect.getValuesCount()).isEqualTo(3);
+        assertThat(BitSet.valueOf(eeEffect.getNullBitmap().toByteArray())).isEqualTo(BitSet.valueOf(new long[]{0b111}));
+    }
+
     @Test
     @DisplayName("Save proportional factor")
     void saveProportionalFactor() throws Exception {
@@ -319,4 +598,77 @@ class NodeTest extends AbstractComponentTest {
                 .andExpect(jsonPath("$.nodeId").value("NODE_ID"))
                 .andExpect(jsonPath("$.historicStartDate").value("2021-01-07T00:00:00.000+00:00"));
     }
+
+    @Test
+    @DisplayName("Moving one exceptional event only changes the series inside its window")
+    void shouldOnlyRecomputeEventWindow_whenExceptionalEventMoves() throws Exception {
+        // Given
+        Date startDate = sdf.parse("01/01/2021");
+        Date endDate = sdf.parse("10/01/2021");
+        Double[] values = new Double[]{10.0, 20.0, 10.0, 20.0, null, null, 10.0, 20.0, 10.0, 20.0};
+        // Series as legacy computed them with ee1 on periods 1-2 and ee2 on periods 6-7 (effect = history - event value)
+        Double[] cleansedHistory = new Double[]{10.0, 15.0, 5.0, 20.0, null, null, 8.0, 12.0, 10.0, 20.0};
+        Double[] eeEffect = new Double[]{null, 5.0, 5.0, null, null, null, 2.0, 8.0, null, null};
+        List<NodeResponse.TimeSeries> ts = List.of(
+                generateTimeSeries(HISTORY, startDate, endDate, values),
+                generateTimeSeries(CLEANSED_HISTORY, startDate, endDate, cleansedHistory),
+                generateTimeSeries(EE_EFFECT, startDate, endDate, eeEffect));
+        stubNode(startDate, endDate, ts);
+        stubLegacyConfig();
+        prepareConfig();
+
+        ExceptionalEvent ee1 = ExceptionalEvent.builder()
+                .id("ee1")
+                .startDate(sdf.parse("02/01/2021"))
+                .endDate(sdf.parse("03/01/2021"))
+                .values(List.of(15., 5.))
+                .effectValues(List.of(5., 5.))
+                .build();
+        ExceptionalEvent ee2 = ExceptionalEvent.builder()
+                .id("ee2")
+                .startDate(sdf.parse("07/01/2021"))
+                .endDate(sdf.parse("08/01/2021"))
+                .values(List.of(8., 12.))
+                .effectValues(List.of(2., 8.))
+                .build();
+        node.setExceptionalEvents(List.of(ee1, ee2));
+        node.setValidatorDisabled(true);
+        mongoTemplate.save(node);
+
+        JsonNode before = objectMapper.readTree(mockMvc.perform(get("/nodes/" + node.getNodeId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        // When
+        ExceptionalEventDto movedEvent = ExceptionalEventDto.builder()
+                .id("ee2")
+                .startDate(sdf.parse("08/01/2021"))
+                .endDate(sdf.parse("09/01/2021"))
+                .values(List.of(16., 4.))
+                .effectValues(List.of(4., 6.))
+                .build();
+        ResultActions result = mockMvc.perform(post("/nodes/" + node.getId() + "/exceptionalEvent")
+                .content(objectMapper.writeValueAsString(movedEvent))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        JsonNode after = objectMapper.readTree(result.andReturn().getResponse().getContentAsString());
+        for (String series : List.of("/timeSeries/EE_EFFECT/values", "/timeSeries/CLEANSED_HISTORY/values")) {
+            for (int period : new int[]{0, 1, 2, 3, 4, 5, 9}) {
+                assertThat(after.at(series).get(period))
+                        .as("%s[%d]", series, period)
+                        .isEqualTo(before.at(series).get(period));
+            }
+        }
+        // Old window 07-08/01 left: period 6 is back to raw history, without effect
+        assertThat(after.at("/timeSeries/EE_EFFECT/values/6").asDouble()).isZero();
+        assertThat(after.at("/timeSeries/CLEANSED_HISTORY/values/6").asDouble()).isEqualTo(10.);
+        // New window 08-09/01
+        assertThat(after.at("/timeSeries/EE_EFFECT/values/7").asDouble()).isEqualTo(4.);
+        assertThat(after.at("/timeSeries/EE_EFFECT/values/8").asDouble()).isEqualTo(6.);
+        assertThat(after.at("/timeSeries/CLEANSED_HISTORY/values/7").asDouble()).isEqualTo(16.);
+        assertThat(after.at("/timeSeries/CLEANSED_HISTORY/values/8").asDouble()).isEqualTo(4.);
+    }
 }
@@ -0,0 +1,119 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.futurmaster.demandplanning.model.SearchNode;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("Search node")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+class SearchNodeTest extends AbstractComponentTest {
+
+    private void prepareSearchNodes() {
+        List<SearchNode> searchNodes = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            searchNodes.add(SearchNode.builder()
+                    .id("SEARCH_NODE_ID" + i)
+                    .code(String.format("CODE%02d", i))
+                    .nodeId("NODE_ID" + i)
+                    .configId(CONFIG_ID)
+                    .build());
+        }
+        // Same codes on another configuration must never be returned
+        searchNodes.add(SearchNode.builder()
+                .id("OTHER_SEARCH_NODE_ID")
+                .code("CODE10")
+                .nodeId("OTHER_NODE_ID")
+                .configId("OTHER_CONFIG_ID")
+                .build());
+
+        mongoTemplate.insertAll(searchNodes);
+    }
+
+    private JsonNode search(MockHttpServletRequestBuilder request) throws Exception {
+        String content = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(content);
+    }
+
+    private List<String> codes(JsonNode page) {
+        List<String> codes = new ArrayList<>();
+        page.get("content").forEach(searchNode -> codes.add(searchNode.get("code").asText()));
+        return codes;
+    }
+
+    @Test
+    @DisplayName("Codes matching a prefix are paginated with a search-after key")
+    void searchByPrefixWithKeysetPagination() throws Exception {
+        // Given
+        prepareSearchNodes();
+
+        // When
+        JsonNode firstPage = search(get("/searchNodes")
+                .param("configId", CONFIG_ID)
+                .param("code", "CODE1")
+                .param("size", "4"));
+        JsonNode secondPage = search(get("/searchNodes")
+                .param("configId", CONFIG_ID)
+                .param("code", "CODE1")
+                .param("size", "4")
+                .param("searchAfter", firstPage.get("searchAfter").asText()));
+        JsonNode lastPage = search(get("/searchNodes")
+                .param("configId", CONFIG_ID)
+                .param("code", "CODE1")
+                .param("size", "4")
+                .param("searchAfter", secondPage.get("searchAfter").asText()));
+
+        // Then
+        assertThat(codes(firstPage)).containsExactly("CODE10", "CODE11", "CODE12", "CODE13");
+        assertThat(codes(secondPage)).containsExactly("CODE14", "CODE15", "CODE16", "CODE17");
+        assertThat(codes(lastPage)).containsExactly("CODE18", "CODE19");
+        assertThat(lastPage.path("searchAfter").isMissingNode() || lastPage.get("searchAfter").isNull()).isTrue();
+        assertThat(firstPage.get("estimatedCount").asLong()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Codes containing a fragment are found for type-ahead")
+    void searchByFragment() throws Exception {
+        // Given
+        prepareSearchNodes();
+
+        // When
+        JsonNode page = search(get("/searchNodes")
+                .param("configId", CONFIG_ID)
+                .param("code", "17")
+                .param("match", "CONTAINS"));
+
+        // Then
+        assertThat(codes(page)).containsExactly("CODE17");
+        assertThat(page.get("content").get(0).get("nodeId").asText()).isEqualTo("NODE_ID17");
+    }
+
+    @Test
+    @DisplayName("Prefix searches are backed by a (configId, code) index")
+    void searchNodesAreIndexedByConfigAndCode() {
+        // When
+        List<IndexInfo> indexes = mongoTemplate.indexOps(SearchNode.class).getIndexInfo();
+
+        // Then
+        assertThat(indexes)
+                .extracting(index -> index.getIndexFields().stream().map(IndexField::getKey).toList())
+                .contains(List.of("configId", "code"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.futurmaster.demandplanning.componenttest;
+
+import com.c4_soft.springaddons.security.oauth2.test.annotations.keycloak.WithMockKeycloakAuth;
+import com.futurmaster.demandplanning.model.*;
+import com.futurmaster.demandplanning.utils.RolesConstants;
+import com.futurmaster.legacyclient.node.Rule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubLegacyConfig;
+import static com.futurmaster.demandplanning.componenttest.utils.CommonStubs.stubLegacyRules;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@DisplayName("Selection")
+@WithMockKeycloakAuth({RolesConstants.ROLE_DP_MANAGE_CARDS})
+class SelectionTest extends AbstractComponentTest {
+
+    private static final String SELECTIONS_URL = "/fmlegacywrapper/api/fmfacade/getSelections";
+
+    private DPConfig dpConfig;
+
+    private void prepareConfig() throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            nodes.add(newNode("ID" + i, "NODE_ID" + i, "CODE" + i));
+        }
+        dpConfig = insertConfig(nodes, ChronoType.DAILY);
+        stubLegacyRules(
+                List.of(new Rule("AGG_1", "Aggregate 1")),
+                List.of(selectionRule("SEL_1", "code", "IN", "CODE1", "CODE3", "CODE5"),
+                        selectionRule("SEL_2", "code", "NOT IN", "CODE0", "CODE1", "CODE2")));
+    }
+
+    /**
+     * Build a selection rule as sent by getSelections. The legacy Rule only has a key and a description, the
+     * description holding the criterion: {@code <SearchNode attribute> IN|NOT IN ('<value>', ...)}.
+     */
+    private static Rule selectionRule(String key, String attribute, String operator, String... values) {
+        String quotedValues = Arrays.stream(values)
+                .map(value -> "'" + value + "'")
+                .collect(Collectors.joining(", "));
+        return new Rule(key, attribute + " " + operator + " (" + quotedValues + ")");
+    }
+
+    private ResultActions evaluateSelection(String ruleKey) throws Exception {
+        return mockMvc.perform(get("/selections/{key}/nodes", ruleKey).param("configId", dpConfig.getId()));
+    }
+
+    @Test
+    @DisplayName("Selection rules are resolved once per config version")
+    void selectionRulesAreCompiledOncePerConfigVersion() throws Exception {
+        // Given
+        stubLegacyConfig();
+        prepareConfig();
+
+        // When
+        ResultActions firstResult = evaluateSelection("SEL_1");
+        ResultActions otherRuleResult = evaluateSelection("SEL_2");
+        ResultActions result = evaluateSelection("SEL_1");
+
+        // Then
+        firstResult.andExpect(status().isOk())
+                .andExpect(jsonPath("$.nodeIds", containsInAnyOrder("NODE_ID1", "NODE_ID3", "NODE_ID5")));
+        otherRuleResult.andExpect(status().isOk())
+                .andExpect(jsonPath("$.nodeIds", containsInAnyOrder(
+                        "NODE_ID3", "NODE_ID4", "NODE_ID5", "NODE_ID6", "NODE_ID7", "NODE_ID8", "NODE_ID9")))
+                .andExpect(jsonPath("$.nodeIds", not(hasItems("NODE_ID0", "NODE_ID1", "NODE_ID2"))));
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.nodeIds", containsInAnyOrder("NODE_ID1", "NODE_ID3", "NODE_ID5")))
+                .andExpect(jsonPath("$.nodeIds", not(hasItem("NODE_ID0"))));
+        verify(1, getRequestedFor(urlEqualTo(SELECTIONS_URL)));
+    }
+
+    @Test
+    @DisplayName("Selection rules are resolved again when the config version changes")
+    void selectionRulesAreRecompiled_whenConfigVersionChanges() throws Exception {
+        // Given
+        stubLegacyConfig();
+        prepareConfig();
+        evaluateSelection("SEL_1").andExpect(status().isOk());
+
+        // When
+        DPConfig savedConfig = mongoTemplate.findById(dpConfig.getId(), DPConfig.class);
+        mongoTemplate.save(savedConfig);
+        ResultActions result = evaluateSelection("SEL_1");
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.nodeIds", containsInAnyOrder("NODE_ID1", "NODE_ID3", "NODE_ID5")));
+        verify(2, getRequestedFor(urlEqualTo(SELECTIONS_URL)));
+    }
+
+    @Test
+    @DisplayName("Unknown selection rule")
+    void unknownSelectionRule() throws Exception {
+        // Given
+        stubLegacyConfig();
+        prepareConfig();
+
+        // When
+        ResultActions result = evaluateSelection("NOT_EXIST");
+
+        // Then
+        result.andExpect(status().isNotFound());
+    }
+}